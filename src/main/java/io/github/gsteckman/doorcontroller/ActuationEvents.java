@@ -0,0 +1,253 @@
+package io.github.gsteckman.doorcontroller;
+
+/*
+ * ActuationEvents.java
+ *
+ * Copyright 2017 Greg Steckman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder event types for tracing a door actuation from the REST request through to delivery of the final
+ * state change to subscribers. All events carry the actuation id assigned when openDoor or closeDoor is entered, so the
+ * events belonging to one actuation can be grouped together in a recording. Event fields are only filled in and
+ * commit() only called when shouldCommit() is true, so when recording is off the overhead is an event allocation and
+ * a flag check. The jfr/doorcontroller.jfc profile enables all of them.
+ * <p>
+ * This class links against jdk.jfr and must only be used through {@link ActuationTrace}, which loads
+ * {@link JfrTrace} only on JVMs that include JFR (OpenJDK 8u262+ or 11+).
+ */
+final class ActuationEvents {
+    private static final String CATEGORY = "Door Controller";
+
+    private ActuationEvents() {
+    }
+
+    /**
+     * Duration of an openDoor or closeDoor call, from entry, including any wait for a concurrent call to complete,
+     * until the monitor thread has been started.
+     */
+    @Name("io.github.gsteckman.doorcontroller.Actuation")
+    @Label("Door Actuation")
+    @Description("openDoor or closeDoor call, including wait for a concurrent call")
+    @Category(CATEGORY)
+    static class Actuation extends Event implements ActuationTrace.Span {
+        @Label("Actuation Id")
+        long actuationId;
+
+        @Label("Action")
+        @Description("open or close")
+        String action;
+
+        @Label("Aborted")
+        @Description("True if the call was interrupted while stopping the previous monitor thread")
+        boolean aborted;
+    }
+
+    /**
+     * Time spent waiting to enter the GpioController monitor before pulsing the actuator.
+     */
+    @Name("io.github.gsteckman.doorcontroller.GpioLock")
+    @Label("GPIO Lock Acquisition")
+    @Description("Wait to synchronize on the GpioController")
+    @Category(CATEGORY)
+    static class GpioLock extends Event implements ActuationTrace.Span {
+        @Label("Actuation Id")
+        long actuationId;
+    }
+
+    /**
+     * Duration of the GPIO pulse that drives the latching relay, measured while holding the GpioController monitor.
+     */
+    @Name("io.github.gsteckman.doorcontroller.GpioPulse")
+    @Label("GPIO Pulse")
+    @Description("GPIO pulse to the door actuator relay")
+    @Category(CATEGORY)
+    static class GpioPulse extends Event implements ActuationTrace.Span {
+        @Label("Actuation Id")
+        long actuationId;
+
+        @Label("Pin")
+        String pin;
+    }
+
+    /**
+     * Duration of a single INA219 current read by the door monitor thread.
+     */
+    @Name("io.github.gsteckman.doorcontroller.CurrentRead")
+    @Label("INA219 Current Read")
+    @Description("I2C read of the actuator current")
+    @Category(CATEGORY)
+    static class CurrentRead extends Event implements ActuationTrace.Span {
+        @Label("Actuation Id")
+        long actuationId;
+
+        @Label("Current")
+        @Description("Measured current in amps, NaN if the read failed")
+        double current;
+
+        @Label("Actuator Started")
+        @Description("True if current above the threshold was seen in an earlier read")
+        boolean actuatorStarted;
+    }
+
+    /**
+     * A door state transition, with its duration covering notification of the property change listeners.
+     */
+    @Name("io.github.gsteckman.doorcontroller.StateChange")
+    @Label("Door State Change")
+    @Description("Door state transition and listener notification")
+    @Category(CATEGORY)
+    static class StateChange extends Event implements ActuationTrace.Span {
+        @Label("Actuation Id")
+        long actuationId;
+
+        @Label("Old State")
+        String oldState;
+
+        @Label("New State")
+        String newState;
+
+        @Label("Cause")
+        @Description("command, edge or timeout")
+        String cause;
+    }
+
+    /**
+     * Duration of a SubscriptionManager.fireEvent call delivering a state change to subscribers.
+     */
+    @Name("io.github.gsteckman.doorcontroller.SubscriptionDelivery")
+    @Label("Subscription Delivery")
+    @Description("Delivery of a door state change to UPnP subscribers")
+    @Category(CATEGORY)
+    static class SubscriptionDelivery extends Event implements ActuationTrace.Span {
+        @Label("Actuation Id")
+        long actuationId;
+
+        @Label("State")
+        String state;
+
+        @Label("Dispatched")
+        @Description("True if fireEvent returned without an exception. Does not indicate that any subscriber received the NOTIFY")
+        boolean dispatched;
+    }
+
+    /**
+     * ActuationTrace implementation that records the events in this class. Instantiated reflectively by
+     * ActuationTrace when jdk.jfr is available.
+     */
+    static class JfrTrace extends ActuationTrace {
+        Span beginActuation() {
+            Actuation event = new Actuation();
+            event.begin();
+            return event;
+        }
+
+        void endActuation(Span span, long actuationId, String action, boolean aborted) {
+            Actuation event = (Actuation) span;
+            event.end();
+            if (event.shouldCommit()) {
+                event.actuationId = actuationId;
+                event.action = action;
+                event.aborted = aborted;
+                event.commit();
+            }
+        }
+
+        Span beginGpioLock() {
+            GpioLock event = new GpioLock();
+            event.begin();
+            return event;
+        }
+
+        void endGpioLock(Span span, long actuationId) {
+            GpioLock event = (GpioLock) span;
+            event.end();
+            if (event.shouldCommit()) {
+                event.actuationId = actuationId;
+                event.commit();
+            }
+        }
+
+        Span beginGpioPulse() {
+            GpioPulse event = new GpioPulse();
+            event.begin();
+            return event;
+        }
+
+        void endGpioPulse(Span span, long actuationId, String pin) {
+            GpioPulse event = (GpioPulse) span;
+            event.end();
+            if (event.shouldCommit()) {
+                event.actuationId = actuationId;
+                event.pin = pin;
+                event.commit();
+            }
+        }
+
+        Span beginCurrentRead() {
+            CurrentRead event = new CurrentRead();
+            event.begin();
+            return event;
+        }
+
+        void endCurrentRead(Span span, long actuationId, double current, boolean actuatorStarted) {
+            CurrentRead event = (CurrentRead) span;
+            event.end();
+            if (event.shouldCommit()) {
+                event.actuationId = actuationId;
+                event.current = current;
+                event.actuatorStarted = actuatorStarted;
+                event.commit();
+            }
+        }
+
+        Span beginStateChange() {
+            StateChange event = new StateChange();
+            event.begin();
+            return event;
+        }
+
+        void endStateChange(Span span, long actuationId, String oldState, String newState, String cause) {
+            StateChange event = (StateChange) span;
+            event.end();
+            if (event.shouldCommit()) {
+                event.actuationId = actuationId;
+                event.oldState = oldState;
+                event.newState = newState;
+                event.cause = cause;
+                event.commit();
+            }
+        }
+
+        Span beginSubscriptionDelivery() {
+            SubscriptionDelivery event = new SubscriptionDelivery();
+            event.begin();
+            return event;
+        }
+
+        void endSubscriptionDelivery(Span span, long actuationId, String state, boolean dispatched) {
+            SubscriptionDelivery event = (SubscriptionDelivery) span;
+            event.end();
+            if (event.shouldCommit()) {
+                event.actuationId = actuationId;
+                event.state = state;
+                event.dispatched = dispatched;
+                event.commit();
+            }
+        }
+    }
+}
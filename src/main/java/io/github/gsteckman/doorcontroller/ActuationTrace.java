@@ -0,0 +1,147 @@
+package io.github.gsteckman.doorcontroller;
+
+/*
+ * ActuationTrace.java
+ *
+ * Copyright 2017 Greg Steckman
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the License.
+ *
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Tracing facade for door actuations. This class does not reference jdk.jfr, so it can be loaded on any JVM. When
+ * jdk.jfr.Event is available the instance returned by {@link #get()} records the JDK Flight Recorder events defined in
+ * {@link ActuationEvents}; otherwise it is a no-op, and the door operates as it would without tracing.
+ * <p>
+ * Each begin method returns a Span that must be passed to the matching end method. Spans returned by the no-op
+ * implementation are null.
+ */
+abstract class ActuationTrace {
+    private static final Log LOG = LogFactory.getLog(ActuationTrace.class);
+    private static final String JFR_EVENT_CLASS = "jdk.jfr.Event";
+    private static final String JFR_TRACE_CLASS = "io.github.gsteckman.doorcontroller.ActuationEvents$JfrTrace";
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+    private static final ActuationTrace INSTANCE = create();
+
+    /**
+     * Opaque handle for an event in progress.
+     */
+    interface Span {
+    }
+
+    /**
+     * @return The ActuationTrace for this JVM.
+     */
+    static ActuationTrace get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return A new actuation id, unique for the life of the process.
+     */
+    static long nextActuationId() {
+        return NEXT_ID.incrementAndGet();
+    }
+
+    /**
+     * Creates the JFR backed implementation if jdk.jfr is available, or the no-op implementation if not. The JFR
+     * implementation is loaded by name so that this class does not link against jdk.jfr.
+     *
+     * @return The ActuationTrace to use.
+     */
+    private static ActuationTrace create() {
+        ClassLoader loader = ActuationTrace.class.getClassLoader();
+        try {
+            Class.forName(JFR_EVENT_CLASS, false, loader);
+            ActuationTrace trace = (ActuationTrace) Class.forName(JFR_TRACE_CLASS, true, loader)
+                    .getDeclaredConstructor().newInstance();
+            LOG.info("JDK Flight Recorder available, door actuation events enabled.");
+            return trace;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LOG.info("JDK Flight Recorder not available, door actuation events disabled.");
+            return new NoOpTrace();
+        }
+    }
+
+    abstract Span beginActuation();
+
+    abstract void endActuation(Span span, long actuationId, String action, boolean aborted);
+
+    abstract Span beginGpioLock();
+
+    abstract void endGpioLock(Span span, long actuationId);
+
+    abstract Span beginGpioPulse();
+
+    abstract void endGpioPulse(Span span, long actuationId, String pin);
+
+    abstract Span beginCurrentRead();
+
+    abstract void endCurrentRead(Span span, long actuationId, double current, boolean actuatorStarted);
+
+    abstract Span beginStateChange();
+
+    abstract void endStateChange(Span span, long actuationId, String oldState, String newState, String cause);
+
+    abstract Span beginSubscriptionDelivery();
+
+    abstract void endSubscriptionDelivery(Span span, long actuationId, String state, boolean dispatched);
+
+    /**
+     * Implementation used when jdk.jfr is not available.
+     */
+    private static class NoOpTrace extends ActuationTrace {
+        Span beginActuation() {
+            return null;
+        }
+
+        void endActuation(Span span, long actuationId, String action, boolean aborted) {
+        }
+
+        Span beginGpioLock() {
+            return null;
+        }
+
+        void endGpioLock(Span span, long actuationId) {
+        }
+
+        Span beginGpioPulse() {
+            return null;
+        }
+
+        void endGpioPulse(Span span, long actuationId, String pin) {
+        }
+
+        Span beginCurrentRead() {
+            return null;
+        }
+
+        void endCurrentRead(Span span, long actuationId, double current, boolean actuatorStarted) {
+        }
+
+        Span beginStateChange() {
+            return null;
+        }
+
+        void endStateChange(Span span, long actuationId, String oldState, String newState, String cause) {
+        }
+
+        Span beginSubscriptionDelivery() {
+            return null;
+        }
+
+        void endSubscriptionDelivery(Span span, long actuationId, String state, boolean dispatched) {
+        }
+    }
+}
@@ -14,6 +14,7 @@ package io.github.gsteckman.doorcontroller;
  *
  */
 
+import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.IOException;
@@ -33,10 +34,14 @@ import io.github.gsteckman.rpi_ina219.INA219;
  * GpioController object so as to avoid concurrent access from multiple threads. Other users of the GpioController
  * instance should take care to prevent concurrent access with this class by also synchronizing on the object or with
  * other suitable mechanisms.
+ * <p>
+ * Each call to openDoor or closeDoor is assigned an actuation id which is recorded in the JDK Flight Recorder events
+ * written through {@link ActuationTrace} and passed to listeners as the propagation id of the state change events.
  *
  */
 public class DoorController {
     private static final Log LOG = LogFactory.getLog(DoorController.class);
+    private static final ActuationTrace TRACE = ActuationTrace.get();
     private final PropertyChangeSupport pcs = new PropertyChangeSupport(this);
     private GpioController gpio;
     private INA219 ina219;
@@ -63,61 +68,93 @@ public class DoorController {
     /**
      * Opens the door by pulsing GPIO pin 4 for 100 ms.
      */
-    public synchronized void openDoor() {
-        // Terminate the monitor thread before proceeding
-        if (monitorThread != null) {
-            monitorThread.interrupt();
-            try {
-                monitorThread.join();
-            } catch (InterruptedException e) {
-                // This is unlikely to happen, but if so abort operation to avoid races
-                return;
+    public void openDoor() {
+        long actuationId = ActuationTrace.nextActuationId();
+        ActuationTrace.Span span = TRACE.beginActuation();
+
+        // Synchronize after beginning the event so that time waiting for a concurrent call is included
+        synchronized (this) {
+            // Terminate the monitor thread before proceeding
+            if (monitorThread != null) {
+                monitorThread.interrupt();
+                try {
+                    monitorThread.join();
+                } catch (InterruptedException e) {
+                    // This is unlikely to happen, but if so abort operation to avoid races
+                    TRACE.endActuation(span, actuationId, "open", true);
+                    return;
+                }
             }
-        }
 
-        // Pulse GPIO to actuate door
-        synchronized (gpio) {
-            pin4.setState(false);
-            pin17.setState(false);
-            pin4.pulse(100, true);
-        }
+            // Pulse GPIO to actuate door
+            pulse(pin4, actuationId);
 
-        // update state and start monitor thread
-        setState(DoorState.OPENING);
-        monitorThread = new Thread(new DoorMonitor());
-        monitorThread.start();
+            // update state and start monitor thread
+            setState(DoorState.OPENING, actuationId, "command");
+            monitorThread = new Thread(new DoorMonitor(actuationId));
+            monitorThread.start();
+        }
+        TRACE.endActuation(span, actuationId, "open", false);
     }
 
     /**
      * Closes the door by pulsing GPIO pin 17 for 100 ms.
      */
-    public synchronized void closeDoor() {
-        // Terminate the monitor thread before proceeding
-        if (monitorThread != null) {
-            monitorThread.interrupt();
-            try {
-                monitorThread.join();
-            } catch (InterruptedException e) {
-                // This is unlikely to happen, but if so abort operation to avoid races
-                return;
+    public void closeDoor() {
+        long actuationId = ActuationTrace.nextActuationId();
+        ActuationTrace.Span span = TRACE.beginActuation();
+
+        // Synchronize after beginning the event so that time waiting for a concurrent call is included
+        synchronized (this) {
+            // Terminate the monitor thread before proceeding
+            if (monitorThread != null) {
+                monitorThread.interrupt();
+                try {
+                    monitorThread.join();
+                } catch (InterruptedException e) {
+                    // This is unlikely to happen, but if so abort operation to avoid races
+                    TRACE.endActuation(span, actuationId, "close", true);
+                    return;
+                }
             }
+
+            // Pulse GPIO to actuate door
+            pulse(pin17, actuationId);
+
+            // update state and start monitor thread
+            setState(DoorState.CLOSING, actuationId, "command");
+            monitorThread = new Thread(new DoorMonitor(actuationId));
+            monitorThread.start();
         }
+        TRACE.endActuation(span, actuationId, "close", false);
+    }
 
-        // Pulse GPIO to actuate door
+    /**
+     * Pulses the given pin for 100 ms after setting both actuator pins low. The pins are accessed while synchronized on
+     * the GpioController.
+     * 
+     * @param pin
+     *            Pin to pulse, either pin4 or pin17.
+     * @param actuationId
+     *            Id of the actuation the pulse belongs to.
+     */
+    private void pulse(final GpioPinDigitalOutput pin, final long actuationId) {
+        ActuationTrace.Span lockSpan = TRACE.beginGpioLock();
         synchronized (gpio) {
+            TRACE.endGpioLock(lockSpan, actuationId);
+
+            ActuationTrace.Span pulseSpan = TRACE.beginGpioPulse();
             pin4.setState(false);
             pin17.setState(false);
-            pin17.pulse(100, true);
+            pin.pulse(100, true);
+            TRACE.endGpioPulse(pulseSpan, actuationId, pin.getName());
         }
-
-        // update state and start monitor thread
-        setState(DoorState.CLOSING);
-        monitorThread = new Thread(new DoorMonitor());
-        monitorThread.start();
     }
 
     /**
-     * Adds a listener for changes to the door state.
+     * Adds a listener for changes to the door state. The propagation id of each PropertyChangeEvent delivered to the
+     * listener is a Long holding the actuation id of the openDoor or closeDoor call that caused the change, matching
+     * the actuation id recorded in the Flight Recorder events written through {@link ActuationTrace}.
      * 
      * @param listener
      *            Listener for door state changes.
@@ -154,15 +191,24 @@ public class DoorController {
     }
 
     /**
-     * This method sets the door's state to the provided value and notifies any listeners of the state change.
+     * This method sets the door's state to the provided value and notifies any listeners of the state change. The
+     * actuation id is set as the propagation id of the PropertyChangeEvent delivered to listeners.
      * 
      * @param newState
      *            New state of the door.
+     * @param actuationId
+     *            Id of the actuation causing the state change.
+     * @param cause
+     *            Reason for the state change recorded in the StateChange event: command, edge or timeout.
      */
-    private void setState(final DoorState newState) {
+    private void setState(final DoorState newState, final long actuationId, final String cause) {
+        ActuationTrace.Span span = TRACE.beginStateChange();
         DoorState oldState = doorState;
         doorState = newState;
-        pcs.firePropertyChange("state", oldState, newState);
+        PropertyChangeEvent pce = new PropertyChangeEvent(this, "state", oldState, newState);
+        pce.setPropagationId(actuationId);
+        pcs.firePropertyChange(pce);
+        TRACE.endStateChange(span, actuationId, oldState.toString(), newState.toString(), cause);
     }
 
     /**
@@ -176,12 +222,17 @@ public class DoorController {
         private long startTime = 0; // time at which the thread was started
         private DoorState state; // door state at creation. Should be Opening or Closing.
         private boolean actuatorStarted = false; // sets to true when current above threshold is detected
+        private final long actuationId; // actuation being monitored
 
         /**
          * Create a new instance.
+         * 
+         * @param actuationId
+         *            Id of the actuation being monitored.
          */
-        private DoorMonitor() {
+        private DoorMonitor(final long actuationId) {
             state = doorState; // capture state at creation
+            this.actuationId = actuationId;
         }
 
         /**
@@ -199,7 +250,7 @@ public class DoorController {
                     return; // exit thread without changing state
                 }
                 try {
-                    double current = ina219.getCurrent();
+                    double current = readCurrent();
 
                     if (current > CURRENT_THRESHOLD) {
                         actuatorStarted = true;
@@ -208,18 +259,18 @@ public class DoorController {
                     if (current < CURRENT_THRESHOLD && actuatorStarted) { // detected falling edge of current
                         // motion stopped
                         if (state == DoorState.OPENING) {
-                            setState(DoorState.OPEN);
+                            setState(DoorState.OPEN, actuationId, "edge");
                         } else if (state == DoorState.CLOSING) {
-                            setState(DoorState.CLOSED);
+                            setState(DoorState.CLOSED, actuationId, "edge");
                         }
                         return;
                     } else {
                         // check timeout condition.
                         if (System.currentTimeMillis() - startTime > MAX_ACTUATION_TIME) {
                             if (state == DoorState.OPENING) {
-                                setState(DoorState.OPEN);
+                                setState(DoorState.OPEN, actuationId, "timeout");
                             } else if (state == DoorState.CLOSING) {
-                                setState(DoorState.CLOSED);
+                                setState(DoorState.CLOSED, actuationId, "timeout");
                             }
                             return;
                         }
@@ -229,5 +280,23 @@ public class DoorController {
                 }
             } while (!Thread.interrupted());
         }
+
+        /**
+         * Reads the actuator current from the INA219, recording the read in a CurrentRead event.
+         * 
+         * @return The measured current in amps.
+         * @throws IOException
+         *             If an I2C error occurs.
+         */
+        private double readCurrent() throws IOException {
+            ActuationTrace.Span span = TRACE.beginCurrentRead();
+            double current = Double.NaN;
+            try {
+                current = ina219.getCurrent();
+                return current;
+            } finally {
+                TRACE.endCurrentRead(span, actuationId, current, actuatorStarted);
+            }
+        }
     }
 }
@@ -49,6 +49,7 @@ import io.github.gsteckman.rpi_rest.SubscriptionManager.SubscriptionInfo;
 @RestController
 public class DoorRestInterface {
     private static final Log LOG = LogFactory.getLog(DoorRestInterface.class);
+    private static final ActuationTrace TRACE = ActuationTrace.get();
     private static final String SUBSCRIBE_METHOD = "SUBSCRIBE";
     private static final String UNSUBSCRIBE_METHOD = "UNSUBSCRIBE";
     private static final String SUBSCRIPTION_KEY = "/door/subscriptions";
@@ -67,10 +68,17 @@ public class DoorRestInterface {
         dc.addPropertyChangeListener(new PropertyChangeListener() {
             public void propertyChange(PropertyChangeEvent arg0) {
                 ObjectMapper mapper = new ObjectMapper();
+                ActuationTrace.Span span = TRACE.beginSubscriptionDelivery();
+                boolean dispatched = false;
                 try {
                     subMgr.fireEvent(SUBSCRIPTION_KEY, "application/JSON", mapper.writeValueAsString(getDoorState()));
+                    dispatched = true;
                 } catch (JsonProcessingException e) {
                     LOG.error(e);
+                } finally {
+                    // DoorController sets the propagation id to the actuation id, see addPropertyChangeListener
+                    TRACE.endSubscriptionDelivery(span, (Long) arg0.getPropagationId(),
+                            String.valueOf(arg0.getNewValue()), dispatched);
                 }
             }
         });